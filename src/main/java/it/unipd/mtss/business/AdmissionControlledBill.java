@@ -0,0 +1,147 @@
+////////////////////////////////////////////////////////////////////
+// Elia Pasquali 1225412
+// Alessio Ferrarini 1223860
+////////////////////////////////////////////////////////////////////
+
+package it.unipd.mtss.business;
+
+import it.unipd.mtss.business.exceptions.OrderBillException;
+import it.unipd.mtss.business.exceptions.OrderOverloadException;
+import it.unipd.mtss.model.EItem;
+import it.unipd.mtss.model.User;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Limits how many orders the wrapped Bill prices at the same time. The limit
+// follows AIMD: it grows by one per limit-worth of fast successful calls made
+// under load and is cut by BACKOFF_RATIO when a call, successful or not, takes
+// longer than the target. It is cut at most once per window: calls that
+// started before the last cut are ignored.
+public class AdmissionControlledBill implements Bill {
+
+  private static final int MIN_LIMIT = 1;
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final Bill bill;
+  private final int maxLimit;
+  private final long latencyTargetNanos;
+  private final LongSupplier nanoClock;
+  private final AtomicInteger inFlight;
+  // The limit is a double stored as raw bits so it can be updated with CAS
+  private final AtomicLong limitBits;
+  private final AtomicLong lastBackoffNanos;
+
+  public AdmissionControlledBill(
+      Bill bill, int initialLimit, int maxLimit, Duration latencyTarget) {
+    this(bill, initialLimit, maxLimit, latencyTarget, System::nanoTime);
+  }
+
+  public AdmissionControlledBill(
+      Bill bill, int initialLimit, int maxLimit,
+      Duration latencyTarget, LongSupplier nanoClock) {
+    this.bill = Objects.requireNonNull(bill, "The bill must not be null");
+    if (initialLimit < MIN_LIMIT || initialLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          "The initial limit must be between 1 and the maximum limit"
+      );
+    }
+    Objects.requireNonNull(
+        latencyTarget, "The latency target must not be null"
+    );
+    // A call can never beat a target of zero, so the limit would sit at 1
+    if (latencyTarget.isZero() || latencyTarget.isNegative()) {
+      throw new IllegalArgumentException(
+          "The latency target must be positive"
+      );
+    }
+    this.maxLimit = maxLimit;
+    this.latencyTargetNanos = latencyTarget.toNanos();
+    this.nanoClock =
+        Objects.requireNonNull(nanoClock, "The clock must not be null");
+    inFlight = new AtomicInteger(0);
+    limitBits = new AtomicLong(Double.doubleToLongBits(initialLimit));
+    lastBackoffNanos = new AtomicLong(nanoClock.getAsLong());
+  }
+
+  @Override
+  public double getOrderPrice(List<EItem> itemsOrdered, User user)
+      throws OrderBillException {
+    var admittedWith = acquire();
+    var start = nanoClock.getAsLong();
+    var succeeded = false;
+    try {
+      var price = bill.getOrderPrice(itemsOrdered, user);
+      succeeded = true;
+      return price;
+    } finally {
+      onCompleted(start, nanoClock.getAsLong(), admittedWith, succeeded);
+      inFlight.decrementAndGet();
+    }
+  }
+
+  public int getLimit() {
+    return (int) limit();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private int acquire() throws OrderOverloadException {
+    while (true) {
+      var current = inFlight.get();
+      if (current >= getLimit()) {
+        throw new OrderOverloadException(
+            "Too many orders are being priced, retry later"
+        );
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  // Lock-free so that completions do not serialize on their way out. Growth
+  // and backoff may race: each update is applied atomically to the latest
+  // limit, but a growth decided on a stale limit can land right after a cut.
+  private void onCompleted(
+      long startNanos, long endNanos, int admittedWith, boolean succeeded) {
+    if (endNanos - startNanos > latencyTargetNanos) {
+      // A spike slows every overlapping call, so only the call that claims
+      // the window cuts the limit
+      var lastBackoff = lastBackoffNanos.get();
+      if (startNanos - lastBackoff >= 0
+          && lastBackoffNanos.compareAndSet(lastBackoff, endNanos)) {
+        updateLimit(false);
+      }
+    } else if (succeeded && admittedWith * 2 >= limit()) {
+      // Only grow on calls that priced an order while the limit is in use,
+      // a fast failure says nothing about spare capacity
+      updateLimit(true);
+    }
+  }
+
+  private void updateLimit(boolean grow) {
+    while (true) {
+      var bits = limitBits.get();
+      var current = Double.longBitsToDouble(bits);
+      var next = grow
+          ? Math.min(maxLimit, current + 1 / current)
+          : Math.max(MIN_LIMIT, current * BACKOFF_RATIO);
+      if (next == current
+          || limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  private double limit() {
+    return Double.longBitsToDouble(limitBits.get());
+  }
+
+}
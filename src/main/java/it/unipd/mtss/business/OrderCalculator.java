@@ -5,6 +5,8 @@
 
 package it.unipd.mtss.business;
 
+import it.unipd.mtss.business.events.OrderPricingEvent;
+import it.unipd.mtss.business.events.PricingStageEvent;
 import it.unipd.mtss.business.exceptions.OrderBillException;
 import it.unipd.mtss.model.EItem;
 import it.unipd.mtss.model.ItemType;
@@ -21,6 +23,15 @@ public class OrderCalculator implements Bill {
   private static final LocalTime AFTER = LocalTime.of(18, 0);
   private static final LocalTime BEFORE = LocalTime.of(19, 0);
 
+  private static final Predicate<EItem> IS_PROCESSOR =
+      e -> e.itemType == ItemType.Processor;
+  private static final Predicate<EItem> IS_MOUSE =
+      e -> e.itemType == ItemType.Mouse;
+  private static final Predicate<EItem> IS_KEYBOARD =
+      e -> e.itemType == ItemType.Keyboard;
+  private static final Predicate<EItem> IS_NOT_DISCOUNTED =
+      e -> !e.isDiscounted;
+
   private final Random random;
   private int giftGiven;
   private final LocalTime orderTime;
@@ -34,33 +45,84 @@ public class OrderCalculator implements Bill {
   @Override
   public double getOrderPrice(List<EItem> itemsOrdered, User user)
       throws OrderBillException {
-    validateArguments(itemsOrdered, user);
-    applyProcessorDiscount(itemsOrdered);
-    applyMouseGift(itemsOrdered);
-    applySameQuantityGift(itemsOrdered);
-
-    var actualPrice = itemsOrdered.stream()
-            .mapToDouble(e -> e.price)
-            .sum();
-
-    // Apply 10% discount on big orders
-    if (actualPrice > 1000) {
-      actualPrice *= 0.9;
+    var orderEvent = OrderPricingEvent.start();
+    var itemCount = itemsOrdered == null ? 0 : itemsOrdered.size();
+    // Rejected until validation passes and failed until the order is priced,
+    // so the order event gets an outcome on every exit
+    var outcome = OrderPricingEvent.REJECTED;
+    var rulesFired = 0;
+    var finalPrice = 0.0;
+    try {
+      validateArguments(itemsOrdered, user);
+      outcome = OrderPricingEvent.FAILED;
+
+      rulesFired = applyItemRules(itemsOrdered);
+
+      var actualPrice = sumPrices(itemsOrdered);
+
+      // Apply 10% discount on big orders
+      var stageEvent =
+          PricingStageEvent.start(PricingStageEvent.BIG_ORDER_DISCOUNT);
+      var isBigOrder = actualPrice > 1000;
+      if (isBigOrder) {
+        actualPrice *= 0.9;
+        rulesFired++;
+      }
+      PricingStageEvent.finish(stageEvent, itemCount, isBigOrder);
+
+      // Apply 2€ commission on small orders
+      stageEvent =
+          PricingStageEvent.start(PricingStageEvent.SMALL_ORDER_COMMISSION);
+      var isSmallOrder = actualPrice < 10;
+      if (isSmallOrder) {
+        actualPrice += 2;
+        rulesFired++;
+      }
+      PricingStageEvent.finish(stageEvent, itemCount, isSmallOrder);
+
+      if (isEligibleForChildrenGift(user, itemCount)) {
+        rulesFired++;
+        outcome = OrderPricingEvent.GIFTED;
+      } else {
+        finalPrice = actualPrice;
+        outcome = OrderPricingEvent.PRICED;
+      }
+      return finalPrice;
+    } finally {
+      OrderPricingEvent.finish(
+          orderEvent, itemCount, rulesFired, outcome, finalPrice
+      );
     }
+  }
 
-    // Apply 2€ commission on small orders
-    if (actualPrice < 10) {
-      actualPrice += 2;
+  private double sumPrices(List<EItem> itemsOrdered) {
+    var stageEvent = PricingStageEvent.start(PricingStageEvent.SUMMING);
+    var sum = 0.0;
+    for (int i = 0; i < itemsOrdered.size(); i++) {
+      sum += itemsOrdered.get(i).price;
     }
+    PricingStageEvent.finish(
+        stageEvent, itemsOrdered.size(), false, PricingStageEvent.COMPLETED
+    );
+    return sum;
+  }
 
-    if (isEligibleForChildrenGift(user)) {
-      return 0;
-    } else {
-      return actualPrice;
+  private int applyItemRules(List<EItem> itemsOrdered) {
+    var rulesFired = 0;
+    if (applyProcessorDiscount(itemsOrdered)) {
+      rulesFired++;
+    }
+    if (applyMouseGift(itemsOrdered)) {
+      rulesFired++;
+    }
+    if (applySameQuantityGift(itemsOrdered)) {
+      rulesFired++;
     }
+    return rulesFired;
   }
 
-  private boolean isEligibleForChildrenGift(User user) {
+  private boolean isEligibleForChildrenGift(User user, int itemCount) {
+    var stageEvent = PricingStageEvent.start(PricingStageEvent.GIFT_LOTTERY);
     var isLucky = random.nextBoolean();
     var gift = user.age < 18
             && orderTime.isAfter(AFTER)
@@ -68,23 +130,45 @@ public class OrderCalculator implements Bill {
             && isLucky;
     if (gift && giftGiven < 10) {
       giftGiven++;
+      PricingStageEvent.finish(stageEvent, itemCount, true);
       return true;
     } else {
+      PricingStageEvent.finish(stageEvent, itemCount, false);
       return false;
     }
   }
 
   private void validateArguments(List<EItem> itemsOrdered, User user)
       throws OrderBillException {
+    var stageEvent = PricingStageEvent.start(PricingStageEvent.VALIDATION);
+    try {
+      checkArguments(itemsOrdered, user);
+    } catch (OrderBillException | RuntimeException e) {
+      PricingStageEvent.finish(
+          stageEvent, itemsOrdered == null ? 0 : itemsOrdered.size(),
+          false, PricingStageEvent.REJECTED
+      );
+      throw e;
+    }
+    PricingStageEvent.finish(
+        stageEvent, itemsOrdered.size(), false, PricingStageEvent.ACCEPTED
+    );
+  }
+
+  private void checkArguments(List<EItem> itemsOrdered, User user)
+      throws OrderBillException {
     Objects.requireNonNull(itemsOrdered, "The ordered items must not be null");
     Objects.requireNonNull(user, "The user must not be null");
     if (itemsOrdered.isEmpty()) {
       throw new OrderBillException("You can't place an order with 0 items");
     }
 
-    var isAnyNegative = itemsOrdered.stream().anyMatch(e -> e.price < 0);
-    if (isAnyNegative) {
-      throw new OrderBillException("All the items must have a positive price");
+    for (int i = 0; i < itemsOrdered.size(); i++) {
+      if (itemsOrdered.get(i).price < 0) {
+        throw new OrderBillException(
+            "All the items must have a positive price"
+        );
+      }
     }
 
     if (itemsOrdered.size() > 30) {
@@ -94,56 +178,82 @@ public class OrderCalculator implements Bill {
     }
   }
 
-  private void applySameQuantityGift(List<EItem> itemsOrdered) {
-    var mouseCount = itemsOrdered.stream()
-            .filter(e -> e.itemType == ItemType.Mouse)
-            .count();
-    var keyboardCount = itemsOrdered.stream()
-            .filter(e -> e.itemType == ItemType.Keyboard)
-            .count();
+  private boolean applySameQuantityGift(List<EItem> itemsOrdered) {
+    var stageEvent =
+        PricingStageEvent.start(PricingStageEvent.SAME_QUANTITY_GIFT);
+    var fired = false;
+    var mouseCount = count(itemsOrdered, IS_MOUSE);
+    var keyboardCount = count(itemsOrdered, IS_KEYBOARD);
     if (mouseCount == keyboardCount && mouseCount > 0) {
-      var cheapestItem = itemsOrdered.stream()
-              .filter(e -> !e.isDiscounted)
-              .min((e1, e2) -> Double.compare(e1.price, e2.price));
-      cheapestItem.ifPresent(e -> {
-        e.isDiscounted = true;
-        e.price = 0;
-      });
+      var cheapestItem = cheapest(itemsOrdered, IS_NOT_DISCOUNTED);
+      if (cheapestItem != null) {
+        cheapestItem.isDiscounted = true;
+        cheapestItem.price = 0;
+        fired = true;
+      }
     }
+    PricingStageEvent.finish(stageEvent, itemsOrdered.size(), fired);
+    return fired;
   }
 
-  private void applyMouseGift(List<EItem> itemsOrdered) {
-    applyQuantityDiscount(
+  private boolean applyMouseGift(List<EItem> itemsOrdered) {
+    return applyQuantityDiscount(
+        PricingStageEvent.MOUSE_GIFT,
         itemsOrdered,
         10,
         0.0f,
-        e -> e.itemType == ItemType.Mouse
+        IS_MOUSE
     );
   }
 
-  private void applyProcessorDiscount(List<EItem> itemsOrdered) {
-    applyQuantityDiscount(
+  private boolean applyProcessorDiscount(List<EItem> itemsOrdered) {
+    return applyQuantityDiscount(
+        PricingStageEvent.PROCESSOR_DISCOUNT,
         itemsOrdered,
         5,
         0.5f,
-        e -> e.itemType == ItemType.Processor
+        IS_PROCESSOR
     );
   }
 
-  private void applyQuantityDiscount(
-      List<EItem> itemsOrdered, int minimumOrder,
+  private boolean applyQuantityDiscount(
+      String stage, List<EItem> itemsOrdered, int minimumOrder,
       float discount, Predicate<EItem> match) {
-    var count = itemsOrdered.stream()
-        .filter(match)
-        .count();
-    if (count >= minimumOrder) {
-      var cheapestProcessor = itemsOrdered.stream()
-          .filter(match)
-          .min((e1, e2) -> Double.compare(e1.price, e2.price))
-          .get(); // Safe since we know we have at least 5 processors
-      cheapestProcessor.price *= discount;
-      cheapestProcessor.isDiscounted = true;
+    var stageEvent = PricingStageEvent.start(stage);
+    var fired = count(itemsOrdered, match) >= minimumOrder;
+    if (fired) {
+      // Never null since we know we have at least minimumOrder matches
+      var cheapestItem = cheapest(itemsOrdered, match);
+      cheapestItem.price *= discount;
+      cheapestItem.isDiscounted = true;
+    }
+    PricingStageEvent.finish(stageEvent, itemsOrdered.size(), fired);
+    return fired;
+  }
+
+  // The helpers below use indexed loops instead of streams so that pricing
+  // an order does not allocate, see OrderCalculatorAllocationTest.
+  private static int count(List<EItem> itemsOrdered, Predicate<EItem> match) {
+    var count = 0;
+    for (int i = 0; i < itemsOrdered.size(); i++) {
+      if (match.test(itemsOrdered.get(i))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static EItem cheapest(
+      List<EItem> itemsOrdered, Predicate<EItem> match) {
+    EItem cheapestItem = null;
+    for (int i = 0; i < itemsOrdered.size(); i++) {
+      var item = itemsOrdered.get(i);
+      if (match.test(item)
+          && (cheapestItem == null || item.price < cheapestItem.price)) {
+        cheapestItem = item;
+      }
     }
+    return cheapestItem;
   }
 
 }
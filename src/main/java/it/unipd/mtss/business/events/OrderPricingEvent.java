@@ -0,0 +1,60 @@
+////////////////////////////////////////////////////////////////////
+// Elia Pasquali 1225412
+// Alessio Ferrarini 1223860
+////////////////////////////////////////////////////////////////////
+
+package it.unipd.mtss.business.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("it.unipd.mtss.OrderPricing")
+@Label("Order Pricing")
+@Category({"MTSS", "Pricing"})
+@Description("A whole call to Bill.getOrderPrice")
+@Enabled(false)
+@StackTrace(false)
+public class OrderPricingEvent extends Event {
+
+  public static final String PRICED = "Priced";
+  public static final String GIFTED = "Gifted";
+  public static final String REJECTED = "Rejected";
+  public static final String FAILED = "Failed";
+
+  private static final EventType TYPE =
+      EventType.getEventType(OrderPricingEvent.class);
+
+  @Label("Item Count")
+  int itemCount;
+
+  @Label("Rules Fired")
+  int rulesFired;
+
+  @Label("Outcome")
+  String outcome;
+
+  @Label("Price")
+  double price;
+
+  public static OrderPricingEvent start() {
+    return PricingEvents.startIfEnabled(TYPE, OrderPricingEvent::new);
+  }
+
+  public static void finish(
+      OrderPricingEvent event, int itemCount, int rulesFired,
+      String outcome, double price) {
+    if (PricingEvents.isRecorded(event)) {
+      event.itemCount = itemCount;
+      event.rulesFired = rulesFired;
+      event.outcome = outcome;
+      event.price = price;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,34 @@
+////////////////////////////////////////////////////////////////////
+// Elia Pasquali 1225412
+// Alessio Ferrarini 1223860
+////////////////////////////////////////////////////////////////////
+
+package it.unipd.mtss.business.events;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+import java.util.function.Supplier;
+
+// Pricing events are created only while a recording enables their type, so
+// that a disabled event costs a single check and no allocation. The start
+// methods return null otherwise and the finish methods ignore null events.
+final class PricingEvents {
+
+  private PricingEvents() {
+  }
+
+  static <T extends Event> T startIfEnabled(
+      EventType type, Supplier<T> factory) {
+    if (!type.isEnabled()) {
+      return null;
+    }
+    var event = factory.get();
+    event.begin();
+    return event;
+  }
+
+  static boolean isRecorded(Event event) {
+    return event != null && event.shouldCommit();
+  }
+}
@@ -0,0 +1,79 @@
+////////////////////////////////////////////////////////////////////
+// Elia Pasquali 1225412
+// Alessio Ferrarini 1223860
+////////////////////////////////////////////////////////////////////
+
+package it.unipd.mtss.business.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("it.unipd.mtss.PricingStage")
+@Label("Pricing Stage")
+@Category({"MTSS", "Pricing"})
+@Description("A single step of pricing an order")
+@Enabled(false)
+@StackTrace(false)
+public class PricingStageEvent extends Event {
+
+  public static final String VALIDATION = "Validation";
+  public static final String PROCESSOR_DISCOUNT = "Processor discount";
+  public static final String MOUSE_GIFT = "Mouse gift";
+  public static final String SAME_QUANTITY_GIFT = "Same quantity gift";
+  public static final String SUMMING = "Summing";
+  public static final String BIG_ORDER_DISCOUNT = "Big order discount";
+  public static final String SMALL_ORDER_COMMISSION =
+      "Small order commission";
+  public static final String GIFT_LOTTERY = "Gift lottery";
+
+  public static final String ACCEPTED = "Accepted";
+  public static final String REJECTED = "Rejected";
+  public static final String APPLIED = "Applied";
+  public static final String SKIPPED = "Skipped";
+  public static final String COMPLETED = "Completed";
+
+  private static final EventType TYPE =
+      EventType.getEventType(PricingStageEvent.class);
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Item Count")
+  int itemCount;
+
+  @Label("Rule Fired")
+  boolean ruleFired;
+
+  @Label("Outcome")
+  String outcome;
+
+  public static PricingStageEvent start(String stage) {
+    var event = PricingEvents.startIfEnabled(TYPE, PricingStageEvent::new);
+    if (event != null) {
+      event.stage = stage;
+    }
+    return event;
+  }
+
+  public static void finish(
+      PricingStageEvent event, int itemCount, boolean ruleFired) {
+    finish(event, itemCount, ruleFired, ruleFired ? APPLIED : SKIPPED);
+  }
+
+  public static void finish(
+      PricingStageEvent event, int itemCount,
+      boolean ruleFired, String outcome) {
+    if (PricingEvents.isRecorded(event)) {
+      event.itemCount = itemCount;
+      event.ruleFired = ruleFired;
+      event.outcome = outcome;
+      event.commit();
+    }
+  }
+}
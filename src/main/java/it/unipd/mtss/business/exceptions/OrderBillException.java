@@ -11,4 +11,8 @@ public class OrderBillException extends Exception{
     super(err);
   }
 
+  protected OrderBillException(String err, boolean writableStackTrace) {
+    super(err, null, false, writableStackTrace);
+  }
+
 }
@@ -0,0 +1,15 @@
+////////////////////////////////////////////////////////////////////
+// Elia Pasquali 1225412
+// Alessio Ferrarini 1223860
+////////////////////////////////////////////////////////////////////
+
+package it.unipd.mtss.business.exceptions;
+
+public class OrderOverloadException extends OrderBillException {
+
+  // Thrown on the fast rejection path, so skip filling in the stack trace
+  public OrderOverloadException(String err) {
+    super(err, false);
+  }
+
+}
@@ -0,0 +1,335 @@
+package it.unipd.mtss.business;
+
+import it.unipd.mtss.business.exceptions.OrderBillException;
+import it.unipd.mtss.business.exceptions.OrderOverloadException;
+import it.unipd.mtss.model.EItem;
+import it.unipd.mtss.model.ItemType;
+import it.unipd.mtss.model.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControlledBillTest {
+
+  private static final double DELTA = 0.0009;
+  private static final Duration TARGET = Duration.ofMillis(10);
+  private static final long FAST = Duration.ofMillis(1).toNanos();
+  private static final long SLOW = Duration.ofMillis(50).toNanos();
+
+  private final User adult = new User("Adulto", 19);
+  private final List<EItem> products = List.of(
+      new EItem(ItemType.Mouse, "MegaMickey", 22)
+  );
+
+  private AtomicLong clock;
+
+  @Before
+  public void setUp() {
+    clock = new AtomicLong(0);
+  }
+
+  @Test
+  public void testGetOrderPrice_DelegatesToBill() throws OrderBillException {
+    var bill = new AdmissionControlledBill(
+        taking(FAST, 42), 1, 10, TARGET, clock::get
+    );
+
+    assertEquals(42, bill.getOrderPrice(products, adult), DELTA);
+    assertEquals(0, bill.getInFlight());
+  }
+
+  @Test
+  public void testGetOrderPrice_RejectsOverLimit() {
+    var holder = new AdmissionControlledBill[1];
+    // The nested call arrives while the outer one still holds the only slot
+    holder[0] = new AdmissionControlledBill(
+        (items, user) -> holder[0].getOrderPrice(items, user),
+        1, 10, TARGET, clock::get
+    );
+
+    OrderOverloadException exc = assertThrows(
+        OrderOverloadException.class,
+        () -> holder[0].getOrderPrice(products, adult)
+    );
+
+    assertEquals(
+        "Too many orders are being priced, retry later",
+        exc.getMessage()
+    );
+    assertEquals(0, exc.getStackTrace().length);
+    assertEquals(0, holder[0].getInFlight());
+  }
+
+  @Test
+  public void testGetOrderPrice_GrowsLimitOnFastCalls()
+      throws OrderBillException {
+    var bill = new AdmissionControlledBill(
+        taking(FAST, 42), 1, 10, TARGET, clock::get
+    );
+
+    // A single call in flight fills a limit of 1, so it grows to 2
+    bill.getOrderPrice(products, adult);
+
+    assertEquals(2, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_GrowsLimitUnderLoad()
+      throws OrderBillException {
+    var holder = new AdmissionControlledBill[1];
+    holder[0] = new AdmissionControlledBill(
+        overlapping(holder, 2, FAST), 2, 10, TARGET, clock::get
+    );
+
+    // Each round the inner call fills the limit: 2 -> 2.5 -> 2.9 -> 3.24
+    for (int i = 0; i < 3; i++) {
+      holder[0].getOrderPrice(products, adult);
+    }
+
+    assertEquals(3, holder[0].getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_KeepsIdleLimit() throws OrderBillException {
+    var bill = new AdmissionControlledBill(
+        taking(FAST, 42), 4, 10, TARGET, clock::get
+    );
+
+    // One call in flight uses less than half of the limit
+    for (int i = 0; i < 10; i++) {
+      bill.getOrderPrice(products, adult);
+    }
+
+    assertEquals(4, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_GrowsLimitUpToMax()
+      throws OrderBillException {
+    var bill = new AdmissionControlledBill(
+        taking(FAST, 42), 2, 2, TARGET, clock::get
+    );
+
+    bill.getOrderPrice(products, adult);
+
+    assertEquals(2, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_ShrinksLimitOnSlowCalls()
+      throws OrderBillException {
+    var bill = new AdmissionControlledBill(
+        taking(SLOW, 42), 10, 10, TARGET, clock::get
+    );
+
+    bill.getOrderPrice(products, adult);
+    assertEquals(9, bill.getLimit());
+
+    for (int i = 0; i < 100; i++) {
+      bill.getOrderPrice(products, adult);
+    }
+    assertEquals(1, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_ShrinksLimitOncePerWindow()
+      throws OrderBillException {
+    var holder = new AdmissionControlledBill[1];
+    // Three nested calls are in flight together and all finish slow
+    holder[0] = new AdmissionControlledBill(
+        overlapping(holder, 3, SLOW), 10, 10, TARGET, clock::get
+    );
+
+    holder[0].getOrderPrice(products, adult);
+
+    assertEquals(9, holder[0].getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_ReleasesSlotOnFailure() {
+    var bill = new AdmissionControlledBill(
+        (items, user) -> {
+          throw new OrderBillException("You can't place an order with 0 items");
+        },
+        1, 10, TARGET, clock::get
+    );
+
+    assertThrows(
+        OrderBillException.class,
+        () -> bill.getOrderPrice(products, adult)
+    );
+
+    assertEquals(0, bill.getInFlight());
+  }
+
+  @Test
+  public void testGetOrderPrice_KeepsLimitOnFastFailure() {
+    var bill = new AdmissionControlledBill(
+        failing(FAST), 1, 10, TARGET, clock::get
+    );
+
+    assertThrows(
+        OrderBillException.class,
+        () -> bill.getOrderPrice(products, adult)
+    );
+
+    assertEquals(1, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_ShrinksLimitOnSlowFailure() {
+    var bill = new AdmissionControlledBill(
+        failing(SLOW), 10, 10, TARGET, clock::get
+    );
+
+    assertThrows(
+        OrderBillException.class,
+        () -> bill.getOrderPrice(products, adult)
+    );
+
+    assertEquals(9, bill.getLimit());
+  }
+
+  @Test
+  public void testGetOrderPrice_NeverExceedsMaxLimitAcrossThreads()
+      throws InterruptedException {
+    var active = new AtomicInteger(0);
+    var maxActive = new AtomicInteger(0);
+    var bill = new AdmissionControlledBill(
+        (items, user) -> {
+          maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+          Thread.yield();
+          active.decrementAndGet();
+          return 42;
+        },
+        1, 4, Duration.ofSeconds(1)
+    );
+    var start = new CountDownLatch(1);
+    var unexpected = new ConcurrentLinkedQueue<Throwable>();
+    var threads = new ArrayList<Thread>();
+
+    for (int t = 0; t < 16; t++) {
+      var thread = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < 500; i++) {
+            try {
+              bill.getOrderPrice(products, adult);
+            } catch (OrderOverloadException e) {
+              // Rejected while the limit is full, try the next order
+            }
+          }
+        } catch (Throwable e) {
+          unexpected.add(e);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (var thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(List.of(), List.copyOf(unexpected));
+    assertTrue(maxActive.get() <= 4);
+    assertEquals(0, bill.getInFlight());
+  }
+
+  @Test
+  public void testConstructor_OnInitialLimitOutOfRange() {
+    IllegalArgumentException exc = assertThrows(
+        IllegalArgumentException.class,
+        () -> new AdmissionControlledBill(
+            taking(FAST, 42), 11, 10, TARGET
+        )
+    );
+
+    assertEquals(
+        "The initial limit must be between 1 and the maximum limit",
+        exc.getMessage()
+    );
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new AdmissionControlledBill(taking(FAST, 42), 0, 10, TARGET)
+    );
+  }
+
+  @Test
+  public void testConstructor_OnNullLatencyTarget() {
+    NullPointerException exc = assertThrows(
+        NullPointerException.class,
+        () -> new AdmissionControlledBill(taking(FAST, 42), 1, 10, null)
+    );
+
+    assertEquals("The latency target must not be null", exc.getMessage());
+  }
+
+  @Test
+  public void testConstructor_OnNonPositiveLatencyTarget() {
+    IllegalArgumentException exc = assertThrows(
+        IllegalArgumentException.class,
+        () -> new AdmissionControlledBill(
+            taking(FAST, 42), 1, 10, Duration.ZERO
+        )
+    );
+
+    assertEquals("The latency target must be positive", exc.getMessage());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new AdmissionControlledBill(
+            taking(FAST, 42), 1, 10, Duration.ofMillis(-1)
+        )
+    );
+  }
+
+  @Test
+  public void testConstructor_OnNullClock() {
+    NullPointerException exc = assertThrows(
+        NullPointerException.class,
+        () -> new AdmissionControlledBill(
+            taking(FAST, 42), 1, 10, TARGET, null
+        )
+    );
+
+    assertEquals("The clock must not be null", exc.getMessage());
+  }
+
+  private Bill taking(long nanos, double price) {
+    return (items, user) -> {
+      clock.addAndGet(nanos);
+      return price;
+    };
+  }
+
+  private Bill failing(long nanos) {
+    return (items, user) -> {
+      clock.addAndGet(nanos);
+      throw new OrderBillException("You can't place an order with 0 items");
+    };
+  }
+
+  // Nests calls through the limiter until the given number are in flight
+  private Bill overlapping(
+      AdmissionControlledBill[] holder, int calls, long nanos) {
+    return (items, user) -> {
+      if (holder[0].getInFlight() < calls) {
+        return holder[0].getOrderPrice(items, user);
+      }
+      clock.addAndGet(nanos);
+      return 42;
+    };
+  }
+
+}
@@ -0,0 +1,205 @@
+package it.unipd.mtss.business;
+
+import it.unipd.mtss.business.exceptions.OrderBillException;
+import it.unipd.mtss.model.EItem;
+import it.unipd.mtss.model.ItemType;
+import it.unipd.mtss.model.User;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class OrderCalculatorAllocationTest {
+
+  // Bytes each pricing mode may allocate per getOrderPrice call once warm
+  private static final long OPTIMIZED_BUDGET = 0;
+
+  private static final int WARM_UP_CALLS = 20_000;
+  private static final int MEASURED_CALLS = 10_000;
+  private static final int MEASUREMENT_ROUNDS = 5;
+
+  private static final LocalTime IN_TIME = LocalTime.of(18, 30);
+
+  private static com.sun.management.ThreadMXBean threadBean;
+
+  private static User adult;
+  private static User minor;
+
+  private OrderCalculator calculator;
+
+  @BeforeClass
+  public static void classSetUp() {
+    var bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threadBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    adult = new User("Adulto", 19);
+    minor = new User("Bocia", 1);
+  }
+
+  @Before
+  public void setUp() {
+    // A mocked Random allocates on every call, so use a plain subclass
+    var alwaysTrue = new Random() {
+      @Override
+      public boolean nextBoolean() {
+        return true;
+      }
+    };
+    calculator = new OrderCalculator(alwaysTrue, IN_TIME);
+  }
+
+  @Test
+  public void testAllocation_OnPlainOrder() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Processor, "Intel Qualcosa", 69),
+        new EItem(ItemType.Motherboard, "MadreTavola", 31)
+    );
+
+    assertWithinBudget("plain order", products, adult, OPTIMIZED_BUDGET);
+  }
+
+  @Test
+  public void testAllocation_OnProcessorDiscount() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Processor, "Processore1", 50),
+        new EItem(ItemType.Processor, "Processore2", 50),
+        new EItem(ItemType.Processor, "Processore3", 50),
+        new EItem(ItemType.Processor, "Processore4", 50),
+        new EItem(ItemType.Processor, "ProcessoreCostoMinimo", 30)
+    );
+
+    assertWithinBudget(
+        "processor discount", products, adult, OPTIMIZED_BUDGET
+    );
+  }
+
+  @Test
+  public void testAllocation_OnMouseGift() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Mouse, "Mouse1", 10),
+        new EItem(ItemType.Mouse, "Mouse2", 10),
+        new EItem(ItemType.Mouse, "Mouse3", 10),
+        new EItem(ItemType.Mouse, "Mouse4", 10),
+        new EItem(ItemType.Mouse, "CheapestMouse", 5),
+        new EItem(ItemType.Mouse, "Mouse5", 10),
+        new EItem(ItemType.Mouse, "Mouse6", 10),
+        new EItem(ItemType.Mouse, "Mouse7", 10),
+        new EItem(ItemType.Mouse, "Mouse8", 10),
+        new EItem(ItemType.Mouse, "Mouse9", 10)
+    );
+
+    assertWithinBudget("mouse gift", products, adult, OPTIMIZED_BUDGET);
+  }
+
+  @Test
+  public void testAllocation_OnSameQuantityGift() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Keyboard, "Keyboard", 50),
+        new EItem(ItemType.Mouse, "Mouse", 50),
+        new EItem(ItemType.Motherboard, "ProdottoMenoCaro", 20)
+    );
+
+    assertWithinBudget(
+        "same quantity gift", products, adult, OPTIMIZED_BUDGET
+    );
+  }
+
+  @Test
+  public void testAllocation_OnBigOrder() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Motherboard, "Board costosa", 550),
+        new EItem(ItemType.Processor, "Processore costoso", 550)
+    );
+
+    assertWithinBudget("big order", products, adult, OPTIMIZED_BUDGET);
+  }
+
+  @Test
+  public void testAllocation_OnSmallOrder() throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Keyboard, "Tastierina", 9)
+    );
+
+    assertWithinBudget("small order", products, adult, OPTIMIZED_BUDGET);
+  }
+
+  @Test
+  public void testAllocation_OnChildrenGiftLottery()
+      throws OrderBillException {
+    var products = List.of(
+        new EItem(ItemType.Processor, "Provola", 13)
+    );
+
+    assertWithinBudget(
+        "children gift lottery", products, minor, OPTIMIZED_BUDGET
+    );
+  }
+
+  private void assertWithinBudget(
+      String mode, List<EItem> products, User user, long budget)
+      throws OrderBillException {
+    var originalPrices = new double[products.size()];
+    for (int i = 0; i < originalPrices.length; i++) {
+      originalPrices[i] = products.get(i).price;
+    }
+
+    runCalls(products, user, originalPrices, WARM_UP_CALLS);
+
+    // Take the best round so that a one-off allocation on this thread
+    // (class loading, deoptimization) does not fail the build
+    var allocated = Long.MAX_VALUE;
+    for (int round = 0; round < MEASUREMENT_ROUNDS; round++) {
+      var overhead = measurementOverhead();
+      var before = allocatedBytes();
+      runCalls(products, user, originalPrices, MEASURED_CALLS);
+      var after = allocatedBytes();
+      allocated = Math.min(allocated, after - before - overhead);
+    }
+
+    var perCall = (double) allocated / MEASURED_CALLS;
+    assertTrue(
+        String.format(
+            "Pricing a %s allocated %.2f bytes per call, budget is %d",
+            mode, perCall, budget
+        ),
+        perCall <= budget
+    );
+  }
+
+  private void runCalls(
+      List<EItem> products, User user, double[] originalPrices, int calls)
+      throws OrderBillException {
+    for (int call = 0; call < calls; call++) {
+      // Discounts mutate the items, restore them so every call is the same
+      for (int i = 0; i < originalPrices.length; i++) {
+        products.get(i).price = originalPrices[i];
+        products.get(i).isDiscounted = false;
+      }
+      calculator.getOrderPrice(products, user);
+    }
+  }
+
+  // Reading the counter may itself allocate, e.g. the id array on JDK 11
+  private static long measurementOverhead() {
+    var before = allocatedBytes();
+    var after = allocatedBytes();
+    return after - before;
+  }
+
+  private static long allocatedBytes() {
+    return threadBean.getThreadAllocatedBytes(
+        Thread.currentThread().getId()
+    );
+  }
+
+}
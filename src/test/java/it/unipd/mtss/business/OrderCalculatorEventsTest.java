@@ -0,0 +1,220 @@
+package it.unipd.mtss.business;
+
+import it.unipd.mtss.business.events.OrderPricingEvent;
+import it.unipd.mtss.business.events.PricingStageEvent;
+import it.unipd.mtss.business.exceptions.OrderBillException;
+import it.unipd.mtss.model.EItem;
+import it.unipd.mtss.model.ItemType;
+import it.unipd.mtss.model.User;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OrderCalculatorEventsTest {
+
+  private static final String ORDER_EVENT = "it.unipd.mtss.OrderPricing";
+  private static final String STAGE_EVENT = "it.unipd.mtss.PricingStage";
+  private static final LocalTime IN_TIME = LocalTime.of(18, 30);
+
+  private final User adult = new User("Adulto", 19);
+  private final User minor = new User("Bocia", 1);
+
+  private OrderCalculator calculator;
+  private Recording recording;
+  private Path dump;
+
+  @Before
+  public void setUp() throws IOException {
+    var alwaysTrue = mock(Random.class);
+    when(alwaysTrue.nextBoolean()).thenReturn(true);
+    calculator = new OrderCalculator(alwaysTrue, IN_TIME);
+    dump = Files.createTempFile("pricing", ".jfr");
+    recording = new Recording();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    recording.close();
+    Files.deleteIfExists(dump);
+  }
+
+  @Test
+  public void testEvents_NotRecordedByDefault() throws Exception {
+    recording.start();
+    calculator.getOrderPrice(
+        List.of(new EItem(ItemType.Mouse, "MegaMickey", 22)), adult
+    );
+
+    assertTrue(stop().isEmpty());
+  }
+
+  @Test
+  public void testEvents_OnPricedOrder() throws Exception {
+    enableEvents();
+    var products = List.of(
+        new EItem(ItemType.Keyboard, "Keyboard", 50),
+        new EItem(ItemType.Mouse, "Mouse", 50),
+        new EItem(ItemType.Motherboard, "ProdottoMenoCaro", 20),
+        new EItem(ItemType.Processor, "Processore1", 50),
+        new EItem(ItemType.Processor, "Processore2", 50),
+        new EItem(ItemType.Processor, "Processore3", 50),
+        new EItem(ItemType.Processor, "Processore4", 50),
+        new EItem(ItemType.Processor, "Processore5", 50),
+        new EItem(ItemType.Processor, "ProcessoreCostoMinimo", 30)
+    );
+
+    calculator.getOrderPrice(products, adult);
+    var events = stop();
+
+    var stages = events.stream()
+        .filter(e -> e.getEventType().getName().equals(STAGE_EVENT))
+        .map(e -> e.getString("stage") + "=" + e.getString("outcome"))
+        .collect(Collectors.toList());
+    assertEquals(
+        List.of(
+            "Validation=Accepted",
+            "Processor discount=Applied",
+            "Mouse gift=Skipped",
+            "Same quantity gift=Applied",
+            "Summing=Completed",
+            "Big order discount=Skipped",
+            "Small order commission=Skipped",
+            "Gift lottery=Skipped"
+        ),
+        stages
+    );
+
+    var order = orderEvent(events);
+    assertEquals(9, order.getInt("itemCount"));
+    assertEquals(2, order.getInt("rulesFired"));
+    assertEquals(OrderPricingEvent.PRICED, order.getString("outcome"));
+    assertEquals(365, order.getDouble("price"), 0.0009);
+  }
+
+  @Test
+  public void testEvents_OnGiftedOrder() throws Exception {
+    enableEvents();
+    var products = List.of(
+        new EItem(ItemType.Processor, "Provola", 13)
+    );
+
+    calculator.getOrderPrice(products, minor);
+    var events = stop();
+
+    var order = orderEvent(events);
+    assertEquals(1, order.getInt("rulesFired"));
+    assertEquals(OrderPricingEvent.GIFTED, order.getString("outcome"));
+    assertEquals(0, order.getDouble("price"), 0.0009);
+  }
+
+  @Test
+  public void testEvents_OnSmallOrderCommission() throws Exception {
+    enableEvents();
+    var products = List.of(
+        new EItem(ItemType.Keyboard, "Tastierina", 9)
+    );
+
+    calculator.getOrderPrice(products, adult);
+    var events = stop();
+
+    var adjustments = events.stream()
+        .filter(e -> e.getEventType().getName().equals(STAGE_EVENT))
+        .filter(e -> e.getBoolean("ruleFired"))
+        .map(e -> e.getString("stage"))
+        .collect(Collectors.toList());
+    assertEquals(List.of("Small order commission"), adjustments);
+    assertEquals(1, orderEvent(events).getInt("rulesFired"));
+  }
+
+  @Test
+  public void testEvents_OnRejectedOrder() throws Exception {
+    enableEvents();
+    List<EItem> products = List.of();
+
+    assertThrows(
+        OrderBillException.class,
+        () -> calculator.getOrderPrice(products, adult)
+    );
+    assertThrows(
+        NullPointerException.class,
+        () -> calculator.getOrderPrice(null, adult)
+    );
+    var events = stop();
+
+    var outcomes = events.stream()
+        .map(e -> e.getEventType().getName() + "=" + e.getString("outcome"))
+        .collect(Collectors.toList());
+    assertEquals(
+        List.of(
+            STAGE_EVENT + "=" + PricingStageEvent.REJECTED,
+            ORDER_EVENT + "=" + OrderPricingEvent.REJECTED,
+            STAGE_EVENT + "=" + PricingStageEvent.REJECTED,
+            ORDER_EVENT + "=" + OrderPricingEvent.REJECTED
+        ),
+        outcomes
+    );
+  }
+
+  @Test
+  public void testEvents_OnFailedOrder() throws Exception {
+    enableEvents();
+    var broken = mock(Random.class);
+    when(broken.nextBoolean()).thenThrow(new IllegalStateException());
+    var brokenCalculator = new OrderCalculator(broken, IN_TIME);
+    var products = List.of(
+        new EItem(ItemType.Keyboard, "Tastierina", 9)
+    );
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> brokenCalculator.getOrderPrice(products, adult)
+    );
+    var events = stop();
+
+    var order = orderEvent(events);
+    assertEquals(1, order.getInt("rulesFired"));
+    assertEquals(OrderPricingEvent.FAILED, order.getString("outcome"));
+    assertEquals(0, order.getDouble("price"), 0.0009);
+  }
+
+  private void enableEvents() {
+    recording.enable(ORDER_EVENT);
+    recording.enable(STAGE_EVENT);
+    recording.start();
+  }
+
+  private List<RecordedEvent> stop() throws IOException {
+    recording.stop();
+    recording.dump(dump);
+    return RecordingFile.readAllEvents(dump).stream()
+        .filter(e -> e.getEventType().getName().startsWith("it.unipd.mtss"))
+        .sorted((e1, e2) -> e1.getEndTime().compareTo(e2.getEndTime()))
+        .collect(Collectors.toList());
+  }
+
+  private static RecordedEvent orderEvent(List<RecordedEvent> events) {
+    var orders = events.stream()
+        .filter(e -> e.getEventType().getName().equals(ORDER_EVENT))
+        .collect(Collectors.toList());
+    assertEquals(1, orders.size());
+    return orders.get(0);
+  }
+
+}